@@ -33,7 +33,7 @@ import java.io.IOException;
 import java.lang.reflect.Array;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Objects;
+import java.util.concurrent.locks.LockSupport;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import javax.imageio.ImageIO;
@@ -42,11 +42,13 @@ import lombok.extern.slf4j.Slf4j;
 import net.runelite.api.ChatMessageType;
 import net.runelite.api.Client;
 import net.runelite.api.GameState;
+import net.runelite.api.Player;
 import net.runelite.api.ScriptID;
 import net.runelite.api.VarClientStr;
 import net.runelite.api.Varbits;
 import net.runelite.api.events.ChatMessage;
 import net.runelite.api.events.GameStateChanged;
+import net.runelite.api.events.GameTick;
 import net.runelite.api.events.ScriptPreFired;
 import net.runelite.api.events.UsernameChanged;
 import net.runelite.api.events.WidgetLoaded;
@@ -86,10 +88,10 @@ public class BetterDiscordLootLoggerPlugin extends Plugin
 	private static final String COX_DUST_MESSAGE_TEXT = "Dust recipients: ";
 	private static final String COX_KIT_MESSAGE_TEXT = "Twisted Kit recipients: ";
 	private static final Pattern TOB_UNIQUE_MESSAGE_PATTERN = Pattern.compile("(.+) found something special: (.+)");
-	private static final Pattern KC_MESSAGE_PATTERN = Pattern.compile("([0-9]+)");
+	private static final int EVENT_QUEUE_CAPACITY = 256;
+	private static final long EVENT_WORKER_JOIN_TIMEOUT_MS = 1000;
 
-	private boolean shouldSendMessage;
-	private boolean notificationStarted;
+	private volatile boolean shouldSendMessage;
 	enum RaidType
 	{
 		COX,
@@ -99,13 +101,25 @@ public class BetterDiscordLootLoggerPlugin extends Plugin
 		TOB_HM
 	}
 
-	private RaidType raidType;
-	//TODO: Include kc for the other notification types too
-	// - Collection log entries
-	// - Valuable drops
-	// - Pets
-	private Integer raidKc;
-	private String raidItemName;
+	// State owned by a single event worker, so that a worker which is slow to stop never shares it with the next one
+	private static class EventWorkerState
+	{
+		private final KillCountTracker killCountTracker = new KillCountTracker();
+		private boolean notificationStarted;
+		private int notificationStartTick;
+		private RaidType raidType;
+		private String raidKillCountSource;
+		private String raidItemName;
+	}
+
+	// Subscribers run on the client thread and only copy the raw event into the queue,
+	// all parsing and state tracking happens on the event worker
+	private volatile EventQueue eventQueue;
+	private volatile Thread eventWorker;
+	// Only touched on the client thread, Player.getName() allocates so it is only read once per login
+	private String localPlayerName;
+	// Only touched on the client thread, so that a worker which died is only reported once
+	private Thread deadEventWorker;
 
 	@Inject
 	private Client client;
@@ -127,13 +141,22 @@ public class BetterDiscordLootLoggerPlugin extends Plugin
 		@Override
 		public void hotkeyPressed()
 		{
-			sendMessage("", 0, "", "", "manual");
+			Player localPlayer = client.getLocalPlayer();
+			sendMessage(localPlayer == null ? null : localPlayer.getName(), "", null, "", "", "manual");
 		}
 	};
 
 	@Override
 	protected void startUp() throws Exception
 	{
+		EventQueue queue = new EventQueue(EVENT_QUEUE_CAPACITY);
+		EventWorkerState state = new EventWorkerState();
+		Thread worker = new Thread(() -> processEvents(queue, state), "Better Discord Loot Logger");
+		worker.setDaemon(true);
+		eventWorker = worker;
+		worker.start();
+		// Only publish the queue once the worker is alive, so queueEvent never mistakes it for a dead one
+		eventQueue = queue;
 		keyManager.registerKeyListener(hotkeyListener);
 	}
 
@@ -141,13 +164,25 @@ public class BetterDiscordLootLoggerPlugin extends Plugin
 	protected void shutDown() throws Exception
 	{
 		keyManager.unregisterKeyListener(hotkeyListener);
-		notificationStarted = false;
+		Thread worker = eventWorker;
+		eventQueue = null;
+		eventWorker = null;
+		if (worker != null)
+		{
+			LockSupport.unpark(worker);
+			worker.join(EVENT_WORKER_JOIN_TIMEOUT_MS);
+			if (worker.isAlive())
+			{
+				log.warn("Event worker did not stop within {}ms", EVENT_WORKER_JOIN_TIMEOUT_MS);
+			}
+		}
 	}
 
 	@Subscribe
 	public void onUsernameChanged(UsernameChanged usernameChanged)
 	{
 		resetState();
+		queueEvent(EventQueue.Type.USERNAME_CHANGED, null, null, 0);
 	}
 
 	@Subscribe
@@ -161,6 +196,19 @@ public class BetterDiscordLootLoggerPlugin extends Plugin
 		}
 	}
 
+	@Subscribe
+	public void onGameTick(GameTick gameTick)
+	{
+		// Hand over any events that overflowed the queue even if no new events come in
+		EventQueue queue = eventQueue;
+		Thread worker = eventWorker;
+		if (queue != null && worker != null && worker.isAlive() && queue.hasOverflow())
+		{
+			queue.flush();
+			LockSupport.unpark(worker);
+		}
+	}
+
 	@Subscribe
 	public void onChatMessage(ChatMessage event)
 	{
@@ -172,11 +220,128 @@ public class BetterDiscordLootLoggerPlugin extends Plugin
 			return;
 		}
 
-		String chatMessage = event.getMessage();
+		queueEvent(EventQueue.Type.CHAT_MESSAGE, event.getMessage(), null, client.getVarbitValue(Varbits.COLLECTION_LOG_NOTIFICATION));
+	}
+
+	@Subscribe
+	public void onWidgetLoaded(WidgetLoaded event)
+	{
+		int groupId = event.getGroupId();
+
+		if (groupId == CHAMBERS_OF_XERIC_REWARD_GROUP_ID || groupId == THEATRE_OF_BLOOD_REWARD_GROUP_ID)
+		{
+			queueEvent(EventQueue.Type.WIDGET_LOADED, null, null, groupId);
+		}
+	}
+
+	@Subscribe
+	public void onScriptPreFired(ScriptPreFired scriptPreFired)
+	{
+		switch (scriptPreFired.getScriptId())
+		{
+			case ScriptID.NOTIFICATION_START:
+				queueEvent(EventQueue.Type.NOTIFICATION_START, null, null, 0);
+				break;
+			case ScriptID.NOTIFICATION_DELAY:
+				queueEvent(EventQueue.Type.NOTIFICATION_DELAY,
+					client.getVarcStrValue(VarClientStr.NOTIFICATION_TOP_TEXT),
+					client.getVarcStrValue(VarClientStr.NOTIFICATION_BOTTOM_TEXT), 0);
+				break;
+		}
+	}
+
+	@Provides
+	BetterDiscordLootLoggerConfig provideConfig(ConfigManager configManager)
+	{
+		return configManager.getConfig(BetterDiscordLootLoggerConfig.class);
+	}
+
+	private void queueEvent(EventQueue.Type type, String text, String secondaryText, int value)
+	{
+		EventQueue queue = eventQueue;
+		Thread worker = eventWorker;
+		if (queue == null || worker == null)
+		{
+			// The plugin is shutting down
+			return;
+		}
+
+		if (!worker.isAlive())
+		{
+			// Nothing would ever take the events off the queue again
+			if (deadEventWorker != worker)
+			{
+				deadEventWorker = worker;
+				log.warn("Event worker has stopped, events will no longer be processed");
+			}
+			return;
+		}
+
+		if (localPlayerName == null)
+		{
+			Player localPlayer = client.getLocalPlayer();
+			localPlayerName = localPlayer == null ? null : localPlayer.getName();
+		}
+
+		queue.put(type, text, secondaryText, localPlayerName, value, client.getTickCount());
+		LockSupport.unpark(worker);
+	}
+
+	private void processEvents(EventQueue queue, EventWorkerState state)
+	{
+		while (eventWorker == Thread.currentThread())
+		{
+			EventQueue.Event event = queue.peek();
+			if (event == null)
+			{
+				LockSupport.park(this);
+				continue;
+			}
+
+			try
+			{
+				processEvent(event, state);
+			}
+			catch (Throwable e)
+			{
+				log.warn("Error processing {} event", event.type, e);
+			}
+			queue.remove();
+		}
+	}
+
+	private void processEvent(EventQueue.Event event, EventWorkerState state)
+	{
+		switch (event.type)
+		{
+			case CHAT_MESSAGE:
+				handleChatMessage(state, event.text, event.playerName, event.value, event.tick);
+				break;
+			case WIDGET_LOADED:
+				handleRaidRewardsLoaded(state, event.value, event.playerName);
+				break;
+			case NOTIFICATION_START:
+				state.notificationStarted = true;
+				state.notificationStartTick = event.tick;
+				break;
+			case NOTIFICATION_DELAY:
+				handleNotification(state, event.text, event.secondaryText, event.playerName);
+				break;
+			case USERNAME_CHANGED:
+				state.killCountTracker.reset();
+				break;
+		}
+	}
+
+	private void handleChatMessage(EventWorkerState state, String chatMessage, String playerName, int collectionLogNotification, int tick)
+	{
+		String sanitizedPlayerName = playerName == null ? null : Text.sanitize(playerName);
+		KillCountTracker.KillCount killCount = state.killCountTracker.onChatMessage(chatMessage, tick);
+		KillCountTracker.KillCount recentKillCount = state.killCountTracker.getRecentKillCount(tick);
 
 		if (config.includePets() && PET_MESSAGES.stream().anyMatch(chatMessage::contains))
 		{
-			sendMessage("", 0, "", "", "pet");
+			sendMessage(playerName, "", recentKillCount, "", "", "pet");
 		}
 
 		if (config.includeValuableDrops())
@@ -190,39 +355,32 @@ public class BetterDiscordLootLoggerPlugin extends Plugin
 					String[] valuableDrop = matcher.group(1).split(" \\(");
 					String valuableDropName = (String) Array.get(valuableDrop, 0);
 					String valuableDropValueString = matcher.group(2);
-					sendMessage(valuableDropName, 0, "", valuableDropValueString, "valuable drop");
+					sendMessage(playerName, valuableDropName, recentKillCount, "", valuableDropValueString, "valuable drop");
 				}
 			}
 		}
 
-		if (config.includeCollectionLogItems() && chatMessage.startsWith(COLLECTION_LOG_TEXT) && client.getVarbitValue(Varbits.COLLECTION_LOG_NOTIFICATION) == 1)
+		if (config.includeCollectionLogItems() && chatMessage.startsWith(COLLECTION_LOG_TEXT) && collectionLogNotification == 1)
 		{
 			String entry = Text.removeTags(chatMessage).substring(COLLECTION_LOG_TEXT.length());
-			sendMessage(entry, 0, "", "", "collection log");
+			sendMessage(playerName, entry, recentKillCount, "", "", "collection log");
 		}
 
 		if (config.includeRaidLoot())
 		{
-			if (chatMessage.startsWith("Your completed Chambers of Xeric count is:"))
+			String killCountSource = killCount == null ? null : killCount.getSource();
+			if (killCountSource != null && killCountSource.startsWith("Chambers of Xeric"))
 			{
-				Matcher matcher = KC_MESSAGE_PATTERN.matcher(Text.removeTags(chatMessage));
-				if (matcher.find())
-				{
-					raidType = chatMessage.contains("Challenge Mode") ? RaidType.COX_CM : RaidType.COX;
-					raidKc = Integer.valueOf(matcher.group());
-					return;
-				}
+				state.raidType = killCountSource.contains("Challenge Mode") ? RaidType.COX_CM : RaidType.COX;
+				state.raidKillCountSource = killCountSource;
+				return;
 			}
 
-			if (chatMessage.startsWith("Your completed Theatre of Blood"))
+			if (killCountSource != null && killCountSource.startsWith("Theatre of Blood"))
 			{
-				Matcher matcher = KC_MESSAGE_PATTERN.matcher(Text.removeTags(chatMessage));
-				if (matcher.find())
-				{
-					raidType = chatMessage.contains("Hard Mode") ? RaidType.TOB_HM : (chatMessage.contains("Story Mode") ? RaidType.TOB_SM : RaidType.TOB);
-					raidKc = Integer.valueOf(matcher.group());
-					return;
-				}
+				state.raidType = killCountSource.contains("Hard Mode") ? RaidType.TOB_HM : (killCountSource.contains("Story Mode") ? RaidType.TOB_SM : RaidType.TOB);
+				state.raidKillCountSource = killCountSource;
+				return;
 			}
 
 			Matcher uniqueMessage = COX_UNIQUE_MESSAGE_PATTERN.matcher(chatMessage);
@@ -231,10 +389,10 @@ public class BetterDiscordLootLoggerPlugin extends Plugin
 				final String lootRecipient = Text.sanitize(uniqueMessage.group(1)).trim();
 				final String dropName = uniqueMessage.group(2).trim();
 
-				if (lootRecipient.equals(Text.sanitize(Objects.requireNonNull(client.getLocalPlayer().getName()))))
+				if (lootRecipient.equals(sanitizedPlayerName))
 				{
-					raidItemName = dropName;
-					sendMessage(raidItemName, raidKc, "Theatre of Blood", "", "raid loot");
+					state.raidItemName = dropName;
+					sendMessage(playerName, state.raidItemName, state.killCountTracker.getKillCount(state.raidKillCountSource), "Theatre of Blood", "", "raid loot");
 				}
 			}
 			if (chatMessage.startsWith(COX_DUST_MESSAGE_TEXT))
@@ -242,9 +400,9 @@ public class BetterDiscordLootLoggerPlugin extends Plugin
 				final String dustRecipient = Text.removeTags(chatMessage).substring(COX_DUST_MESSAGE_TEXT.length());
 				final String dropName = "Metamorphic dust";
 
-				if (dustRecipient.equals(Text.sanitize(Objects.requireNonNull(client.getLocalPlayer().getName()))))
+				if (dustRecipient.equals(sanitizedPlayerName))
 				{
-					raidItemName = dropName;
+					state.raidItemName = dropName;
 				}
 			}
 			if (chatMessage.startsWith(COX_KIT_MESSAGE_TEXT))
@@ -252,9 +410,9 @@ public class BetterDiscordLootLoggerPlugin extends Plugin
 				final String dustRecipient = Text.removeTags(chatMessage).substring(COX_KIT_MESSAGE_TEXT.length());
 				final String dropName = "Twisted ancestral colour kit";
 
-				if (dustRecipient.equals(Text.sanitize(Objects.requireNonNull(client.getLocalPlayer().getName()))))
+				if (dustRecipient.equals(sanitizedPlayerName))
 				{
-					raidItemName = dropName;
+					state.raidItemName = dropName;
 				}
 			}
 
@@ -264,121 +422,101 @@ public class BetterDiscordLootLoggerPlugin extends Plugin
 				final String lootRecipient = Text.sanitize(tobUniqueMessage.group(1)).trim();
 				final String dropName = tobUniqueMessage.group(2).trim();
 
-				if (lootRecipient.equals(Text.sanitize(Objects.requireNonNull(client.getLocalPlayer().getName()))))
+				if (lootRecipient.equals(sanitizedPlayerName))
 				{
-					raidItemName = dropName;
+					state.raidItemName = dropName;
 				}
 			}
 		}
 	}
 
-	@Subscribe
-	public void onWidgetLoaded(WidgetLoaded event)
+	private void handleRaidRewardsLoaded(EventWorkerState state, int groupId, String playerName)
 	{
-		int groupId = event.getGroupId();
+		if (!config.includeRaidLoot())
+		{
+			return;
+		}
 
-		if (groupId == CHAMBERS_OF_XERIC_REWARD_GROUP_ID || groupId == THEATRE_OF_BLOOD_REWARD_GROUP_ID)
+		if (groupId == CHAMBERS_OF_XERIC_REWARD_GROUP_ID && state.raidItemName != null)
 		{
-			if (!config.includeRaidLoot())
+			if (state.raidType == RaidType.COX)
 			{
-				return;
+				sendMessage(playerName, state.raidItemName, state.killCountTracker.getKillCount(state.raidKillCountSource), "Chambers of Xeric", "", "raid loot");
 			}
-
-			if (groupId == CHAMBERS_OF_XERIC_REWARD_GROUP_ID && raidItemName != null)
+			else if (state.raidType == RaidType.COX_CM)
 			{
-				if (raidType == RaidType.COX)
-				{
-					sendMessage(raidItemName, raidKc, "Chambers of Xeric", "", "raid loot");
-				}
-				else if (raidType == RaidType.COX_CM)
-				{
-					sendMessage(raidItemName, raidKc, "Chambers of Xeric Challenge Mode", "", "raid loot");
-				}
-				return;
+				sendMessage(playerName, state.raidItemName, state.killCountTracker.getKillCount(state.raidKillCountSource), "Chambers of Xeric Challenge Mode", "", "raid loot");
 			}
-			if (groupId == THEATRE_OF_BLOOD_REWARD_GROUP_ID && raidItemName != null)
+			return;
+		}
+		if (groupId == THEATRE_OF_BLOOD_REWARD_GROUP_ID && state.raidItemName != null)
+		{
+			if (state.raidType != RaidType.TOB && state.raidType != RaidType.TOB_SM && state.raidType != RaidType.TOB_HM)
 			{
-				if (raidType != RaidType.TOB && raidType != RaidType.TOB_SM && raidType != RaidType.TOB_HM)
-				{
-					return;
-				}
+				return;
+			}
 
-				switch (raidType)
-				{
-					case TOB:
-						sendMessage(raidItemName, raidKc , "Theatre of Blood", "", "raid loot");
-						break;
-					case TOB_SM:
-						sendMessage(raidItemName, raidKc, "Theatre of Blood Story mode", "", "raid loot");
-						break;
-					case TOB_HM:
-						sendMessage(raidItemName, raidKc, "Theatre of Blood Hard Mode", "", "raid loot");
-						break;
-					default:
-						throw new IllegalStateException();
-				}
+			switch (state.raidType)
+			{
+				case TOB:
+					sendMessage(playerName, state.raidItemName, state.killCountTracker.getKillCount(state.raidKillCountSource), "Theatre of Blood", "", "raid loot");
+					break;
+				case TOB_SM:
+					sendMessage(playerName, state.raidItemName, state.killCountTracker.getKillCount(state.raidKillCountSource), "Theatre of Blood Story mode", "", "raid loot");
+					break;
+				case TOB_HM:
+					sendMessage(playerName, state.raidItemName, state.killCountTracker.getKillCount(state.raidKillCountSource), "Theatre of Blood Hard Mode", "", "raid loot");
+					break;
+				default:
+					throw new IllegalStateException();
 			}
-			raidItemName = null;
-			raidType = null;
-			raidKc = 0;
 		}
+		state.raidItemName = null;
+		state.raidType = null;
+		state.raidKillCountSource = null;
 	}
 
-	@Subscribe
-	public void onScriptPreFired(ScriptPreFired scriptPreFired)
+	private void handleNotification(EventWorkerState state, String notificationTopText, String notificationBottomText, String playerName)
 	{
-		switch (scriptPreFired.getScriptId())
+		if (!state.notificationStarted)
 		{
-			case ScriptID.NOTIFICATION_START:
-				notificationStarted = true;
-				break;
-			case ScriptID.NOTIFICATION_DELAY:
-				if (!notificationStarted)
-				{
-					return;
-				}
-				String notificationTopText = client.getVarcStrValue(VarClientStr.NOTIFICATION_TOP_TEXT);
-				String notificationBottomText = client.getVarcStrValue(VarClientStr.NOTIFICATION_BOTTOM_TEXT);
-				if (notificationTopText.equalsIgnoreCase("Collection log") && config.includeCollectionLogItems())
-				{
-					String entry = Text.removeTags(notificationBottomText).substring("New item:".length());
-					sendMessage(entry, 0, "","", "collection log");
-				}
-				notificationStarted = false;
-				break;
+			return;
 		}
+		if (notificationTopText.equalsIgnoreCase("Collection log") && config.includeCollectionLogItems())
+		{
+			String entry = Text.removeTags(notificationBottomText).substring("New item:".length());
+			// The popup starts on the tick the item is given out, unless it had to wait for earlier popups.
+			// A late popup gets no kill count rather than one that might belong to a different item
+			KillCountTracker.KillCount recentKillCount = state.killCountTracker.getRecentKillCount(state.notificationStartTick);
+			sendMessage(playerName, entry, recentKillCount, "", "", "collection log");
+		}
+		state.notificationStarted = false;
 	}
 
-	@Provides
-	BetterDiscordLootLoggerConfig provideConfig(ConfigManager configManager)
-	{
-		return configManager.getConfig(BetterDiscordLootLoggerConfig.class);
-	}
-
-	private void sendMessage(String itemName, Integer itemKc, String bossName, String itemValue, String notificationType)
+	private void sendMessage(String playerName, String itemName, KillCountTracker.KillCount killCount, String bossName, String itemValue, String notificationType)
 	{
 		if (!shouldSendMessage) {return;}
 
 		switch (notificationType)
 		{
 			case "pet":
-				itemName = " a new pet!";
+				itemName = " a new pet!" + formatKillCount(killCount);
 				break;
 			case "valuable drop":
-				itemName = " a valuable drop: **" + itemName + "**!";
+				itemName = " a valuable drop: **" + itemName + "**!" + formatKillCount(killCount);
 				break;
 			case "collection log":
-				itemName = " a new collection log item: **" + itemName + "**!";
+				itemName = " a new collection log item: **" + itemName + "**!" + formatKillCount(killCount);
 				break;
 			case "raid loot" :
-				itemName = " a rare drop from " + bossName + ": **" + itemName + "**!" + (itemKc == null ? "" : itemKc == 0 ? "" : "\nKill Count: **" + itemKc + "**");
+				itemName = " a rare drop from " + bossName + ": **" + itemName + "**!" + formatKillCount(killCount);
 				break;
 			default:
 				itemName = " **a rare drop**";
 				break;
 		}
 
-		String screenshotString = "**" + client.getLocalPlayer().getName() + "**";
+		String screenshotString = "**" + playerName + "**";
 		//TODO: Get value of item for raid drops too
 		// - Easy for TOB as it's in the chat
 		// - COX might have to use map of item names and ids and grab price from the wiki
@@ -398,6 +536,15 @@ public class BetterDiscordLootLoggerPlugin extends Plugin
 		sendWebhook(discordWebhookBody);
 	}
 
+	private static String formatKillCount(KillCountTracker.KillCount killCount)
+	{
+		if (killCount == null)
+		{
+			return "";
+		}
+		return "\n" + killCount.getDescription() + ": **" + killCount.getCount() + "**";
+	}
+
 	private void sendWebhook(com.betterdiscordlootlogger.DiscordWebhookBody discordWebhookBody)
 	{
 		String configUrl = config.webhook();
@@ -483,6 +630,7 @@ public class BetterDiscordLootLoggerPlugin extends Plugin
 	private void resetState()
 	{
 		shouldSendMessage = false;
+		localPlayerName = null;
 	}
 
 
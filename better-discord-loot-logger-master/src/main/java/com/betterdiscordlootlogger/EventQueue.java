@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2022, RinZ
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.betterdiscordlootlogger;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free single producer, single consumer ring buffer used to hand raw game events from the client thread
+ * to the worker thread. All slots are allocated up front so that offering an event never allocates.
+ * <p>
+ * Events that do not fit are kept by {@link #put} in a producer side overflow queue until there is room again,
+ * so that no event is ever lost. This only allocates if the consumer falls a whole buffer behind.
+ */
+class EventQueue
+{
+	enum Type
+	{
+		CHAT_MESSAGE,
+		WIDGET_LOADED,
+		NOTIFICATION_START,
+		NOTIFICATION_DELAY,
+		USERNAME_CHANGED
+	}
+
+	static class Event
+	{
+		Type type;
+		String text;
+		String secondaryText;
+		String playerName;
+		int value;
+		int tick;
+
+		void set(Type type, String text, String secondaryText, String playerName, int value, int tick)
+		{
+			this.type = type;
+			this.text = text;
+			this.secondaryText = secondaryText;
+			this.playerName = playerName;
+			this.value = value;
+			this.tick = tick;
+		}
+	}
+
+	private final Event[] events;
+	private final int mask;
+	// Index of the next event to read, only written by the consumer
+	private final AtomicLong head = new AtomicLong();
+	// Index of the next event to write, only written by the producer
+	private final AtomicLong tail = new AtomicLong();
+	// Producer's last view of head, so it only has to re-read it when the buffer looks full
+	private long cachedHead;
+	// Events that did not fit in the buffer yet, only touched by the producer
+	private final Deque<Event> overflow = new ArrayDeque<>();
+
+	EventQueue(int capacity)
+	{
+		if (capacity <= 0 || Integer.bitCount(capacity) != 1)
+		{
+			throw new IllegalArgumentException("capacity must be a power of two");
+		}
+
+		events = new Event[capacity];
+		for (int i = 0; i < capacity; i++)
+		{
+			events[i] = new Event();
+		}
+		mask = capacity - 1;
+	}
+
+	/**
+	 * Copies an event into the next free slot. Must only be called from the producer thread.
+	 *
+	 * @return false if the queue is full and the event was dropped
+	 */
+	boolean offer(Type type, String text, String secondaryText, String playerName, int value, int tick)
+	{
+		long currentTail = tail.get();
+		if (currentTail - cachedHead >= events.length)
+		{
+			cachedHead = head.get();
+			if (currentTail - cachedHead >= events.length)
+			{
+				return false;
+			}
+		}
+
+		events[(int) currentTail & mask].set(type, text, secondaryText, playerName, value, tick);
+		tail.lazySet(currentTail + 1);
+		return true;
+	}
+
+	/**
+	 * Copies an event into the next free slot, or into the overflow queue if the buffer is full.
+	 * Events keep their order either way. Must only be called from the producer thread.
+	 */
+	void put(Type type, String text, String secondaryText, String playerName, int value, int tick)
+	{
+		if ((overflow.isEmpty() || flush()) && offer(type, text, secondaryText, playerName, value, tick))
+		{
+			return;
+		}
+
+		Event event = new Event();
+		event.set(type, text, secondaryText, playerName, value, tick);
+		overflow.add(event);
+	}
+
+	/**
+	 * Moves as many overflowed events into the buffer as fit. Must only be called from the producer thread.
+	 *
+	 * @return true if the overflow queue is now empty
+	 */
+	boolean flush()
+	{
+		for (Event event = overflow.peek(); event != null; event = overflow.peek())
+		{
+			if (!offer(event.type, event.text, event.secondaryText, event.playerName, event.value, event.tick))
+			{
+				return false;
+			}
+			overflow.poll();
+		}
+		return true;
+	}
+
+	/**
+	 * @return true if there are events waiting in the overflow queue. Must only be called from the producer thread.
+	 */
+	boolean hasOverflow()
+	{
+		return !overflow.isEmpty();
+	}
+
+	/**
+	 * Gets the oldest event without removing it. Must only be called from the consumer thread.
+	 *
+	 * @return the oldest event, or null if the queue is empty
+	 */
+	Event peek()
+	{
+		long currentHead = head.get();
+		if (currentHead >= tail.get())
+		{
+			return null;
+		}
+		return events[(int) currentHead & mask];
+	}
+
+	/**
+	 * Releases the slot returned by {@link #peek()} back to the producer. Must only be called from the consumer thread.
+	 */
+	void remove()
+	{
+		long currentHead = head.get();
+		Event event = events[(int) currentHead & mask];
+		event.type = null;
+		event.text = null;
+		event.secondaryText = null;
+		event.playerName = null;
+		head.lazySet(currentHead + 1);
+	}
+}
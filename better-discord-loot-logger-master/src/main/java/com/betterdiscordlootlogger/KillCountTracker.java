@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2022, RinZ
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.betterdiscordlootlogger;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import lombok.Value;
+import net.runelite.client.util.Text;
+
+/**
+ * Keeps track of the kill counts reported in chat so that every notification type can include one.
+ * Counts are kept in memory per source for the account that is currently logged in.
+ */
+class KillCountTracker
+{
+	private static final Pattern KILL_COUNT_PATTERN = Pattern.compile("Your ((completion count for |subdued |completed )?(.+?) (?:(kill|harvest|lap|completion) )?(?:count )?)is: ([0-9,]+)\\.?");
+	// Drops, pets and collection log entries are given out in the same or the next few ticks as the kill count
+	static final int RECENT_KILL_COUNT_TICKS = 3;
+
+	@Value
+	static class KillCount
+	{
+		String source;
+		// The count as the game describes it, e.g. "Vorkath kill count" or "Seers' Village Rooftop lap count"
+		String description;
+		int count;
+		// False for skilling counts such as laps, harvests and subdued Wintertodts
+		boolean bossKillCount;
+	}
+
+	private final Map<String, KillCount> killCounts = new HashMap<>();
+
+	private KillCount lastBossKillCount;
+	private int lastBossKillCountTick = -1;
+
+	/**
+	 * Parses a chat message and records the kill count if it contains one.
+	 *
+	 * @return the kill count, or null if the message was not a kill count message
+	 */
+	KillCount onChatMessage(String chatMessage, int tick)
+	{
+		Matcher matcher = KILL_COUNT_PATTERN.matcher(Text.removeTags(chatMessage));
+		if (!matcher.matches())
+		{
+			return null;
+		}
+
+		String description = matcher.group(1).trim();
+		String type = matcher.group(4);
+		boolean bossKillCount = !"subdued ".equals(matcher.group(2)) && !"lap".equals(type) && !"harvest".equals(type);
+		KillCount killCount = new KillCount(
+			matcher.group(3).trim(),
+			Character.toUpperCase(description.charAt(0)) + description.substring(1),
+			Integer.parseInt(matcher.group(5).replaceAll(",", "")),
+			bossKillCount);
+
+		killCounts.put(toKey(killCount.getSource()), killCount);
+		if (bossKillCount)
+		{
+			lastBossKillCount = killCount;
+			lastBossKillCountTick = tick;
+		}
+		return killCount;
+	}
+
+	/**
+	 * @return the last kill count seen for a source, or null if there was none
+	 */
+	KillCount getKillCount(String source)
+	{
+		return source == null ? null : killCounts.get(toKey(source));
+	}
+
+	/**
+	 * Gets the boss or raid kill count that belongs to an item given out on the given tick.
+	 * Skilling counts are left out, as an item given out right after a lap or harvest is not a reward for it.
+	 *
+	 * @return the boss kill count seen within the last few ticks, or null if there was none
+	 */
+	KillCount getRecentKillCount(int tick)
+	{
+		return lastBossKillCountTick >= 0 && tick - lastBossKillCountTick <= RECENT_KILL_COUNT_TICKS ? lastBossKillCount : null;
+	}
+
+	/**
+	 * Drops the counts of the previous account.
+	 */
+	void reset()
+	{
+		killCounts.clear();
+		lastBossKillCount = null;
+		lastBossKillCountTick = -1;
+	}
+
+	private static String toKey(String source)
+	{
+		return source.toLowerCase(Locale.ROOT);
+	}
+}
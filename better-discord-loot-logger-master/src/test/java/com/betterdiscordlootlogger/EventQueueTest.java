@@ -0,0 +1,170 @@
+package com.betterdiscordlootlogger;
+
+import java.util.concurrent.atomic.AtomicReference;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class EventQueueTest
+{
+	private static final int CAPACITY = 4;
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testCapacityNotPowerOfTwo()
+	{
+		new EventQueue(3);
+	}
+
+	@Test
+	public void testEmpty()
+	{
+		EventQueue queue = new EventQueue(CAPACITY);
+		assertNull(queue.peek());
+	}
+
+	@Test
+	public void testFifoAcrossWrapAround()
+	{
+		EventQueue queue = new EventQueue(CAPACITY);
+		int next = 0;
+		// Keep the buffer nearly full while the indexes wrap around it several times
+		for (int i = 0; i < CAPACITY * 5; i++)
+		{
+			assertTrue(queue.offer(EventQueue.Type.CHAT_MESSAGE, "message " + i, null, "player", i, i));
+			if (i >= CAPACITY - 1)
+			{
+				assertEvent(queue.peek(), next);
+				queue.remove();
+				next++;
+			}
+		}
+		while (queue.peek() != null)
+		{
+			assertEvent(queue.peek(), next);
+			queue.remove();
+			next++;
+		}
+		assertEquals(CAPACITY * 5, next);
+	}
+
+	@Test
+	public void testOfferWhenFull()
+	{
+		EventQueue queue = new EventQueue(CAPACITY);
+		for (int i = 0; i < CAPACITY; i++)
+		{
+			assertTrue(queue.offer(EventQueue.Type.CHAT_MESSAGE, "message " + i, null, "player", i, i));
+		}
+		assertFalse(queue.offer(EventQueue.Type.CHAT_MESSAGE, "message", null, "player", CAPACITY, CAPACITY));
+		assertEvent(queue.peek(), 0);
+	}
+
+	@Test
+	public void testSlotReusedOnlyAfterRemove()
+	{
+		EventQueue queue = new EventQueue(CAPACITY);
+		for (int i = 0; i < CAPACITY; i++)
+		{
+			queue.offer(EventQueue.Type.CHAT_MESSAGE, "message " + i, null, "player", i, i);
+		}
+
+		EventQueue.Event first = queue.peek();
+		assertFalse(queue.offer(EventQueue.Type.CHAT_MESSAGE, "message", null, "player", CAPACITY, CAPACITY));
+		assertEvent(first, 0);
+
+		queue.remove();
+		assertNull(first.text);
+		assertTrue(queue.offer(EventQueue.Type.CHAT_MESSAGE, "message " + CAPACITY, null, "player", CAPACITY, CAPACITY));
+		assertFalse(queue.offer(EventQueue.Type.CHAT_MESSAGE, "message", null, "player", CAPACITY + 1, CAPACITY + 1));
+
+		for (int i = 1; i < CAPACITY; i++)
+		{
+			assertEvent(queue.peek(), i);
+			queue.remove();
+		}
+		// The freed slot was reused for the newest event
+		assertSame(first, queue.peek());
+		assertEvent(queue.peek(), CAPACITY);
+	}
+
+	@Test
+	public void testPutKeepsOrderWhenFull()
+	{
+		EventQueue queue = new EventQueue(CAPACITY);
+		for (int i = 0; i < CAPACITY * 3; i++)
+		{
+			queue.put(EventQueue.Type.CHAT_MESSAGE, "message " + i, null, "player", i, i);
+		}
+		assertTrue(queue.hasOverflow());
+
+		for (int i = 0; i < CAPACITY * 3; i++)
+		{
+			assertEvent(queue.peek(), i);
+			queue.remove();
+			queue.flush();
+		}
+		assertFalse(queue.hasOverflow());
+		assertNull(queue.peek());
+	}
+
+	@Test
+	public void testConcurrentProducerAndConsumer() throws InterruptedException
+	{
+		final int eventCount = 4_000_000;
+		EventQueue queue = new EventQueue(1024);
+		AtomicReference<AssertionError> failure = new AtomicReference<>();
+
+		Thread consumer = new Thread(() ->
+		{
+			int next = 0;
+			while (next < eventCount)
+			{
+				EventQueue.Event event = queue.peek();
+				if (event == null)
+				{
+					Thread.yield();
+					continue;
+				}
+				if (event.value != next || event.tick != next || event.type != EventQueue.Type.CHAT_MESSAGE)
+				{
+					failure.set(new AssertionError("expected event " + next + " but got " + event.value));
+					return;
+				}
+				queue.remove();
+				next++;
+			}
+		});
+		consumer.start();
+
+		for (int i = 0; i < eventCount && failure.get() == null; )
+		{
+			if (queue.offer(EventQueue.Type.CHAT_MESSAGE, null, null, null, i, i))
+			{
+				i++;
+			}
+			else
+			{
+				Thread.yield();
+			}
+		}
+		consumer.join();
+
+		if (failure.get() != null)
+		{
+			throw failure.get();
+		}
+		assertNull(queue.peek());
+	}
+
+	private static void assertEvent(EventQueue.Event event, int index)
+	{
+		assertEquals(EventQueue.Type.CHAT_MESSAGE, event.type);
+		assertEquals("message " + index, event.text);
+		assertEquals("player", event.playerName);
+		assertEquals(index, event.value);
+		assertEquals(index, event.tick);
+	}
+}
@@ -0,0 +1,154 @@
+package com.betterdiscordlootlogger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import org.junit.Before;
+import org.junit.Test;
+
+public class KillCountTrackerTest
+{
+	private KillCountTracker killCountTracker;
+
+	@Before
+	public void before()
+	{
+		killCountTracker = new KillCountTracker();
+	}
+
+	@Test
+	public void testKillCount()
+	{
+		assertKillCount("Your Vorkath kill count is: <col=ff0000>1,024</col>.",
+			"Vorkath", "Vorkath kill count", 1024, true);
+	}
+
+	@Test
+	public void testChambersOfXeric()
+	{
+		assertKillCount("Your completed Chambers of Xeric count is: <col=ff0000>52</col>.",
+			"Chambers of Xeric", "Completed Chambers of Xeric count", 52, true);
+	}
+
+	@Test
+	public void testChambersOfXericChallengeMode()
+	{
+		assertKillCount("Your completed Chambers of Xeric Challenge Mode count is: <col=ff0000>3</col>.",
+			"Chambers of Xeric Challenge Mode", "Completed Chambers of Xeric Challenge Mode count", 3, true);
+	}
+
+	@Test
+	public void testTheatreOfBlood()
+	{
+		assertKillCount("Your completed Theatre of Blood count is: <col=ff0000>17</col>.",
+			"Theatre of Blood", "Completed Theatre of Blood count", 17, true);
+	}
+
+	@Test
+	public void testTheatreOfBloodStoryMode()
+	{
+		assertKillCount("Your completed Theatre of Blood: Story Mode count is: <col=ff0000>4</col>.",
+			"Theatre of Blood: Story Mode", "Completed Theatre of Blood: Story Mode count", 4, true);
+	}
+
+	@Test
+	public void testTheatreOfBloodHardMode()
+	{
+		assertKillCount("Your completed Theatre of Blood: Hard Mode count is: <col=ff0000>8</col>.",
+			"Theatre of Blood: Hard Mode", "Completed Theatre of Blood: Hard Mode count", 8, true);
+	}
+
+	@Test
+	public void testLapCount()
+	{
+		assertKillCount("Your Seers' Village Rooftop lap count is: <col=ff0000>1,337</col>.",
+			"Seers' Village Rooftop", "Seers' Village Rooftop lap count", 1337, false);
+	}
+
+	@Test
+	public void testHarvestCount()
+	{
+		assertKillCount("Your herbiboar harvest count is: <col=ff0000>250</col>.",
+			"herbiboar", "Herbiboar harvest count", 250, false);
+	}
+
+	@Test
+	public void testSubduedCount()
+	{
+		assertKillCount("Your subdued Wintertodt count is: <col=ff0000>500</col>.",
+			"Wintertodt", "Subdued Wintertodt count", 500, false);
+	}
+
+	@Test
+	public void testCompletionCount()
+	{
+		assertKillCount("Your Gauntlet completion count is: <col=ff0000>12</col>.",
+			"Gauntlet", "Gauntlet completion count", 12, true);
+	}
+
+	@Test
+	public void testChestCount()
+	{
+		assertKillCount("Your Barrows chest count is: <col=ff0000>100</col>.",
+			"Barrows chest", "Barrows chest count", 100, true);
+	}
+
+	@Test
+	public void testOtherMessage()
+	{
+		assertNull(killCountTracker.onChatMessage("<col=ef1020>Valuable drop: Dragon warhammer (39,860,000 coins)</col>", 0));
+		assertNull(killCountTracker.getRecentKillCount(0));
+	}
+
+	@Test
+	public void testRecentKillCount()
+	{
+		KillCountTracker.KillCount killCount = killCountTracker.onChatMessage("Your Vorkath kill count is: <col=ff0000>5</col>.", 10);
+
+		assertSame(killCount, killCountTracker.getRecentKillCount(10));
+		assertSame(killCount, killCountTracker.getRecentKillCount(10 + KillCountTracker.RECENT_KILL_COUNT_TICKS));
+		assertNull(killCountTracker.getRecentKillCount(11 + KillCountTracker.RECENT_KILL_COUNT_TICKS));
+	}
+
+	@Test
+	public void testSkillingCountNotRecent()
+	{
+		// An item given out right after a lap is not a reward for the lap, so it gets no count
+		KillCountTracker.KillCount lapCount = killCountTracker.onChatMessage("Your Seers' Village Rooftop lap count is: <col=ff0000>150</col>.", 10);
+
+		assertFalse(lapCount.isBossKillCount());
+		assertNull(killCountTracker.getRecentKillCount(11));
+		assertSame(lapCount, killCountTracker.getKillCount("Seers' Village Rooftop"));
+	}
+
+	@Test
+	public void testSkillingCountKeepsBossKillCount()
+	{
+		KillCountTracker.KillCount killCount = killCountTracker.onChatMessage("Your Vorkath kill count is: <col=ff0000>5</col>.", 10);
+		killCountTracker.onChatMessage("Your herbiboar harvest count is: <col=ff0000>250</col>.", 11);
+		killCountTracker.onChatMessage("Your subdued Wintertodt count is: <col=ff0000>500</col>.", 11);
+
+		assertSame(killCount, killCountTracker.getRecentKillCount(12));
+	}
+
+	@Test
+	public void testReset()
+	{
+		killCountTracker.onChatMessage("Your Vorkath kill count is: <col=ff0000>5</col>.", 0);
+		killCountTracker.reset();
+
+		assertNull(killCountTracker.getKillCount("Vorkath"));
+		assertNull(killCountTracker.getRecentKillCount(0));
+	}
+
+	private void assertKillCount(String message, String source, String description, int count, boolean bossKillCount)
+	{
+		KillCountTracker.KillCount killCount = killCountTracker.onChatMessage(message, 0);
+		assertEquals(source, killCount.getSource());
+		assertEquals(description, killCount.getDescription());
+		assertEquals(count, killCount.getCount());
+		assertEquals(bossKillCount, killCount.isBossKillCount());
+		assertSame(killCount, killCountTracker.getKillCount(source));
+	}
+}